@@ -3,6 +3,7 @@ package me.linjw.pathfinding;
 import android.graphics.Point;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -13,12 +14,16 @@ public class AStartFinder implements IPathFinder {
     private static final int INVALID_INDEX = -1;
     private int mWidth;
     private int mHeight;
-    private Map<Integer, Point> mUnreachableMap = new HashMap<>();
+    private GridMap mGridMap = new GridMap();
+    private IndexCache mIndexCache;
+    private ComponentIndex mComponentIndex;
 
     private LinkedList<Compute> mOpenPoints = new LinkedList<>();
     private Map<Integer, Compute> mOpenPointMap = new HashMap<>();
     private List<Compute> mClosePoints = new ArrayList<>();
     private Map<Integer, Compute> mClosePointMap = new HashMap<>();
+    private OnSearchListener mOnSearchListener;
+    private int mExpandedCount;
 
     public List<Compute> getOpenPoints() {
         return mOpenPoints;
@@ -28,21 +33,41 @@ public class AStartFinder implements IPathFinder {
         return mClosePoints;
     }
 
+    /**
+     * 设置之后buildIndex得到的索引会保存到磁盘,同样的地图下次直接读取
+     */
+    public void setIndexCache(IndexCache indexCache) {
+        mIndexCache = indexCache;
+    }
+
+    /**
+     * 地图确定或者加载完之后调用,从缓存读取或者重新计算连通区域索引并写回缓存.
+     * 计算和读写文件比较耗时,应该在后台线程调用,调用期间不能修改障碍物.
+     * 之后修改障碍物会让索引失效,寻路时不会自动重建,需要再次调用
+     */
+    public void buildIndex() {
+        mComponentIndex = ComponentIndex.obtain(mGridMap, mIndexCache);
+    }
+
+    /**
+     * 搜索的过程中每个格子加入开放列表或者关闭列表时回调,回调在调用getPath的线程里执行
+     */
+    public void setOnSearchListener(OnSearchListener onSearchListener) {
+        mOnSearchListener = onSearchListener;
+    }
+
     @Override
     public void setSize(int width, int height) {
         mWidth = width;
         mHeight = height;
-        mUnreachableMap.clear();
+        mGridMap.setSize(width, height);
+        mComponentIndex = null;
     }
 
     @Override
     public boolean addUnreachable(Point point) {
-        if (point.x < 0 || point.x >= mWidth || point.y < 0 || point.y >= mHeight) {
-            return false;
-        }
-        int index = computeIndex(point);
-        if (!mUnreachableMap.containsKey(index)) {
-            mUnreachableMap.put(index, point);
+        if (mGridMap.addUnreachable(point.x, point.y)) {
+            mComponentIndex = null;
             return true;
         }
         return false;
@@ -50,12 +75,8 @@ public class AStartFinder implements IPathFinder {
 
     @Override
     public boolean removeUnreachable(Point point) {
-        if (point.x < 0 || point.x >= mWidth || point.y < 0 || point.y >= mHeight) {
-            return false;
-        }
-        int index = computeIndex(point);
-        if (mUnreachableMap.containsKey(index)) {
-            mUnreachableMap.remove(index);
+        if (mGridMap.removeUnreachable(point.x, point.y)) {
+            mComponentIndex = null;
             return true;
         }
         return false;
@@ -63,15 +84,24 @@ public class AStartFinder implements IPathFinder {
 
     @Override
     public void clearUnreachable() {
-        mUnreachableMap.clear();
+        mGridMap.clear();
+        mComponentIndex = null;
+    }
+
+    /**
+     * 一次搜索得到从起点出发maxSteps步以内可以到达的所有格子和它们到起点的距离,
+     * 起点不在地图内返回null
+     */
+    public ReachableSet getReachable(Point start, int maxSteps) {
+        if (!mGridMap.isInside(start.x, start.y)) {
+            return null;
+        }
+        return ReachableSet.search(mGridMap, start.x, start.y, maxSteps);
     }
 
     @Override
     public List<Point> getPath(Point start, Point end) {
-        mOpenPoints.clear();
-        mOpenPointMap.clear();
-        mClosePoints.clear();
-        mClosePointMap.clear();
+        clearSearchList();
 
         if (start.x == end.x && start.y == end.y) {
             List<Point> path = new ArrayList<>();
@@ -79,10 +109,84 @@ public class AStartFinder implements IPathFinder {
             return path;
         }
 
+        if (isDisconnected(start, end)) {
+            return null;
+        }
+
         Compute compute = new Compute(start, null, 0, computeDistance(start, end));
         mOpenPoints.add(compute);
         mOpenPointMap.put(computeIndex(start), compute);
 
+        return search(end);
+    }
+
+    /**
+     * 从起点走到多个目标里最近的一个.
+     * 反过来以所有目标为起点同时搜索,第一次走到start时经过的目标就是最近的目标,
+     * 所以开销和一次getPath差不多,不会随目标的数量线性增长
+     *
+     * @return 找不到路径返回null
+     */
+    public NearestPath getNearestPath(Point start, List<Point> goals) {
+        clearSearchList();
+
+        for (Point goal : goals) {
+            if (goal.x == start.x && goal.y == start.y) {
+                List<Point> path = new ArrayList<>();
+                path.add(start);
+                return new NearestPath(goal, path);
+            }
+
+            int index = computeIndex(goal);
+            if (index == INVALID_INDEX || mOpenPointMap.containsKey(index) || isDisconnected(start, goal)) {
+                continue;
+            }
+            Compute compute = new Compute(goal, null, 0, computeDistance(goal, start));
+            addToOpenList(compute, mOpenPoints);
+            mOpenPointMap.put(index, compute);
+        }
+
+        // 反向搜索得到的路径是从start到目标,翻转成和getPath一样从目标到起点的顺序
+        List<Point> path = search(start);
+        if (path == null) {
+            return null;
+        }
+        Collections.reverse(path);
+        return new NearestPath(path.get(0), path);
+    }
+
+    @Override
+    public int getExpandedCount() {
+        return mExpandedCount;
+    }
+
+    /**
+     * 两个点都可以通行但是不在同一个连通区域时,不用搜索就知道没有路径.
+     * 只使用已经建好的索引,没有的话直接搜索
+     */
+    private boolean isDisconnected(Point a, Point b) {
+        if (mComponentIndex == null
+                || computeIndex(a) == INVALID_INDEX
+                || computeIndex(b) == INVALID_INDEX
+                || mGridMap.isUnreachable(a.x, a.y)
+                || mGridMap.isUnreachable(b.x, b.y)) {
+            return false;
+        }
+        return !mComponentIndex.isConnected(a.x, a.y, b.x, b.y);
+    }
+
+    private void clearSearchList() {
+        mExpandedCount = 0;
+        mOpenPoints.clear();
+        mOpenPointMap.clear();
+        mClosePoints.clear();
+        mClosePointMap.clear();
+    }
+
+    /**
+     * 从开放列表里已有的点开始搜索到end的路径
+     */
+    private List<Point> search(Point end) {
         final int[][] move = {
                 {-1, 0}, // 往左走
                 {1, 0}, // 往右走
@@ -90,20 +194,25 @@ public class AStartFinder implements IPathFinder {
                 {0, 1} // 往下走
         };
 
+        Compute compute;
         boolean findPath = false;
         while (!mOpenPoints.isEmpty() && !findPath) {
             compute = mOpenPoints.remove(0); // 开放列表是用插入排序排好序的,第一个就是目前的最优路径
             mClosePointMap.put(computeIndex(compute.getPoint()), compute);
             mClosePoints.add(compute);
+            mExpandedCount++;
+            if (mOnSearchListener != null) {
+                mOnSearchListener.onClose(compute);
+            }
 
             for (int i = 0; i < move.length; i++) {
-                findPath = move(compute, move[i][0], move[i][1], end, mOpenPoints, mOpenPointMap, mClosePointMap, mUnreachableMap);
+                findPath = move(compute, move[i][0], move[i][1], end, mOpenPoints, mOpenPointMap, mClosePointMap, mGridMap);
 
                 if (!findPath) {
                     continue;
                 }
                 // 走到终点了
-                mClosePoints.add(new Compute(end, compute, computeDistance(start, end), 0));
+                mClosePoints.add(new Compute(end, compute, compute.getDistanceToStart() + 1, 0));
                 break;
             }
         }
@@ -129,7 +238,7 @@ public class AStartFinder implements IPathFinder {
                          LinkedList<Compute> openPoints,
                          Map<Integer, Compute> openPointMap,
                          Map<Integer, Compute> closePointMap,
-                         Map<Integer, Point> unreachableMap) {
+                         GridMap gridMap) {
         int nextX = currentPosition.getPoint().x + dx;
         int nextY = currentPosition.getPoint().y + dy;
         if (nextX == end.x && nextY == end.y) {
@@ -138,7 +247,7 @@ public class AStartFinder implements IPathFinder {
         int indexNextPoint = computeIndex(nextX, nextY);
         if (indexNextPoint != INVALID_INDEX
                 && !closePointMap.containsKey(indexNextPoint)
-                && !unreachableMap.containsKey(indexNextPoint)) {
+                && !gridMap.isUnreachable(nextX, nextY)) {
 
             Compute nextStep = openPointMap.get(indexNextPoint);
             int nextDistanceToStartPoint = currentPosition.getDistanceToStart() + 1;
@@ -152,12 +261,18 @@ public class AStartFinder implements IPathFinder {
                         computeDistance(nextPoint, end));
                 addToOpenList(nextStep, openPoints);
                 openPointMap.put(computeIndex(nextStep.getPoint()), nextStep);
+                if (mOnSearchListener != null) {
+                    mOnSearchListener.onOpen(nextStep);
+                }
             } else if (nextStep.getDistanceToStart() > nextDistanceToStartPoint) {
                 // 如果之前探索过这个格子,如果新路径可以更快的从起点走到该格子.则更新路径
                 openPoints.remove(nextStep);
                 nextStep.setDistanceToStart(nextDistanceToStartPoint);
                 nextStep.setParent(currentPosition);
                 addToOpenList(nextStep, openPoints);
+                if (mOnSearchListener != null) {
+                    mOnSearchListener.onOpen(nextStep);
+                }
             }
         }
         return false;
@@ -244,4 +359,31 @@ public class AStartFinder implements IPathFinder {
             return distanceTotal;
         }
     }
-}
\ No newline at end of file
+
+    public interface OnSearchListener {
+        void onOpen(Compute compute);
+
+        void onClose(Compute compute);
+    }
+
+    public static class NearestPath {
+        private Point goal;
+        private List<Point> path;
+
+        NearestPath(Point goal, List<Point> path) {
+            this.goal = goal;
+            this.path = path;
+        }
+
+        public Point getGoal() {
+            return goal;
+        }
+
+        /**
+         * 和getPath一样,第一个点是目标,最后一个点是起点
+         */
+        public List<Point> getPath() {
+            return path;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package me.linjw.pathfinding;
+
+import android.graphics.Point;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * 在分页的ChunkedWorld上寻路,寻路经过哪里就加载哪里的chunk,可以跨越chunk边界.
+ * <p>
+ * 世界很大时终点不可达会让搜索把整个连通区域都展开,开放列表和关闭列表会占满内存,
+ * 所以每次搜索最多展开maxExpanded个格子,超过之后放弃搜索返回null,用isLimitReached区分
+ */
+public class ChunkedAStartFinder implements IPathFinder {
+    // 每个展开的格子在开放列表和关闭列表里大约占200字节,默认上限大约占用25M内存
+    public static final int DEFAULT_MAX_EXPANDED = 1 << 17;
+
+    private static final int[][] MOVE = {
+            {-1, 0}, // 往左走
+            {1, 0}, // 往右走
+            {0, -1}, // 往上走
+            {0, 1} // 往下走
+    };
+
+    private static final Comparator<AStartFinder.Compute> COMPARATOR = new Comparator<AStartFinder.Compute>() {
+        @Override
+        public int compare(AStartFinder.Compute a, AStartFinder.Compute b) {
+            if (a.getDistanceTotal() != b.getDistanceTotal()) {
+                return a.getDistanceTotal() < b.getDistanceTotal() ? -1 : 1;
+            }
+            return Integer.compare(a.getDistanceToEnd(), b.getDistanceToEnd());
+        }
+    };
+
+    private final ChunkedWorld mWorld;
+    private final int mMaxExpanded;
+    private int mExpandedCount;
+    private boolean mLimitReached;
+
+    public ChunkedAStartFinder(ChunkedWorld world) {
+        this(world, DEFAULT_MAX_EXPANDED);
+    }
+
+    public ChunkedAStartFinder(ChunkedWorld world, int maxExpanded) {
+        if (maxExpanded <= 0) {
+            throw new IllegalArgumentException("maxExpanded must be positive: " + maxExpanded);
+        }
+        mWorld = world;
+        mMaxExpanded = maxExpanded;
+    }
+
+    public ChunkedWorld getWorld() {
+        return mWorld;
+    }
+
+    public int getChunkLoadCount() {
+        return mWorld.getChunkLoadCount();
+    }
+
+    public int getChunkEvictionCount() {
+        return mWorld.getChunkEvictionCount();
+    }
+
+    @Override
+    public void setSize(int width, int height) {
+        mWorld.setSize(width, height);
+    }
+
+    @Override
+    public boolean addUnreachable(Point point) {
+        return mWorld.isInside(point.x, point.y) && mWorld.setUnreachable(point.x, point.y, true);
+    }
+
+    @Override
+    public boolean removeUnreachable(Point point) {
+        return mWorld.isInside(point.x, point.y) && mWorld.setUnreachable(point.x, point.y, false);
+    }
+
+    @Override
+    public void clearUnreachable() {
+        mWorld.clear();
+    }
+
+    /**
+     * @return 起点或终点在世界外面、不能通行、没有路径或者展开的格子超过上限时返回null
+     */
+    @Override
+    public List<Point> getPath(Point start, Point end) {
+        mExpandedCount = 0;
+        mLimitReached = false;
+        // 先检查是否在世界里面,不在的话不用加载chunk
+        if (!mWorld.isInside(start.x, start.y) || !mWorld.isInside(end.x, end.y)
+                || mWorld.isUnreachable(start.x, start.y) || mWorld.isUnreachable(end.x, end.y)) {
+            return null;
+        }
+
+        if (start.x == end.x && start.y == end.y) {
+            List<Point> path = new ArrayList<>();
+            path.add(start);
+            return path;
+        }
+
+        // 世界太大,格子的索引用long表示
+        PriorityQueue<AStartFinder.Compute> openPoints = new PriorityQueue<>(64, COMPARATOR);
+        Map<Long, AStartFinder.Compute> openPointMap = new HashMap<>();
+        Set<Long> closePoints = new HashSet<>();
+
+        AStartFinder.Compute compute = new AStartFinder.Compute(start, null, 0, computeDistance(start.x, start.y, end));
+        openPoints.add(compute);
+        openPointMap.put(computeKey(start.x, start.y), compute);
+
+        while (!openPoints.isEmpty()) {
+            compute = openPoints.poll();
+            Point point = compute.getPoint();
+            long key = computeKey(point.x, point.y);
+            if (openPointMap.get(key) != compute) {
+                // 路径更新时旧的节点没有从堆里删除,直接跳过
+                continue;
+            }
+            openPointMap.remove(key);
+            closePoints.add(key);
+            mExpandedCount++;
+
+            if (point.x == end.x && point.y == end.y) {
+                List<Point> path = new ArrayList<>();
+                path.add(end);
+                compute = compute.getParent();
+                while (compute != null) {
+                    path.add(compute.getPoint());
+                    compute = compute.getParent();
+                }
+                return path;
+            }
+            if (mExpandedCount >= mMaxExpanded) {
+                // 展开的格子太多,放弃搜索
+                mLimitReached = true;
+                return null;
+            }
+
+            for (int[] move : MOVE) {
+                int nextX = point.x + move[0];
+                int nextY = point.y + move[1];
+                long nextKey = computeKey(nextX, nextY);
+                if (closePoints.contains(nextKey) || !isWalkable(nextX, nextY)) {
+                    continue;
+                }
+
+                int nextDistanceToStart = compute.getDistanceToStart() + 1;
+                AStartFinder.Compute nextStep = openPointMap.get(nextKey);
+                if (nextStep == null || nextStep.getDistanceToStart() > nextDistanceToStart) {
+                    nextStep = new AStartFinder.Compute(
+                            new Point(nextX, nextY),
+                            compute,
+                            nextDistanceToStart,
+                            computeDistance(nextX, nextY, end));
+                    openPoints.add(nextStep);
+                    openPointMap.put(nextKey, nextStep);
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int getExpandedCount() {
+        return mExpandedCount;
+    }
+
+    /**
+     * @return 上一次搜索是不是因为展开的格子超过上限才返回null的
+     */
+    public boolean isLimitReached() {
+        return mLimitReached;
+    }
+
+    private boolean isWalkable(int x, int y) {
+        return mWorld.isInside(x, y) && !mWorld.isUnreachable(x, y);
+    }
+
+    private static int computeDistance(int x, int y, Point end) {
+        return Math.abs(end.x - x) + Math.abs(end.y - y);
+    }
+
+    private static long computeKey(int x, int y) {
+        return ((long) y << 32) | (x & 0xffffffffL);
+    }
+}
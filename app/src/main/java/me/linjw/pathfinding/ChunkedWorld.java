@@ -0,0 +1,201 @@
+package me.linjw.pathfinding;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按固定大小的chunk分页保存障碍物,chunk第一次被访问时才从chunk store加载,
+ * 超过内存上限时按LRU把最久没访问的chunk写回并换出
+ */
+public class ChunkedWorld {
+    public static final int DEFAULT_CHUNK_SHIFT = 6; // 64 * 64
+    private static final int CHUNK_OVERHEAD_BYTES = 64;
+
+    private final IChunkStore mStore;
+    private final int mChunkShift;
+    private final int mChunkMask;
+    private final int mWordCount;
+    private final int mMaxLoadedChunks;
+    private int mWidth;
+    private int mHeight;
+
+    private final LinkedHashMap<Long, Chunk> mChunks = new LinkedHashMap<>(16, 0.75f, true);
+    private Chunk mLastChunk;
+
+    private int mLoadCount;
+    private int mEvictionCount;
+
+    public ChunkedWorld(IChunkStore store, long memoryLimitBytes) {
+        this(store, DEFAULT_CHUNK_SHIFT, memoryLimitBytes);
+    }
+
+    public ChunkedWorld(IChunkStore store, int chunkShift, long memoryLimitBytes) {
+        if (chunkShift < 3 || chunkShift > 12) {
+            throw new IllegalArgumentException("chunkShift out of range: " + chunkShift);
+        }
+        mStore = store;
+        mChunkShift = chunkShift;
+        mChunkMask = (1 << chunkShift) - 1;
+        mWordCount = Math.max(1, (1 << (chunkShift * 2)) >> 6);
+
+        long chunkBytes = mWordCount * 8L + CHUNK_OVERHEAD_BYTES;
+        mMaxLoadedChunks = (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryLimitBytes / chunkBytes));
+    }
+
+    /**
+     * 只修改世界的边界,障碍物仍然保存在chunk store里
+     */
+    public void setSize(int width, int height) {
+        flush();
+        mChunks.clear();
+        mLastChunk = null;
+        mWidth = width;
+        mHeight = height;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getChunkSize() {
+        return 1 << mChunkShift;
+    }
+
+    public boolean isInside(int x, int y) {
+        return x >= 0 && x < mWidth && y >= 0 && y < mHeight;
+    }
+
+    public boolean isUnreachable(int x, int y) {
+        Chunk chunk = getChunk(x >> mChunkShift, y >> mChunkShift);
+        int bit = computeBit(x, y);
+        return (chunk.words[bit >> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * @return 格子的状态是否发生了改变
+     */
+    public boolean setUnreachable(int x, int y, boolean unreachable) {
+        Chunk chunk = getChunk(x >> mChunkShift, y >> mChunkShift);
+        int bit = computeBit(x, y);
+        long mask = 1L << bit;
+        long word = chunk.words[bit >> 6];
+        if (((word & mask) != 0) == unreachable) {
+            return false;
+        }
+        chunk.words[bit >> 6] = unreachable ? word | mask : word & ~mask;
+        chunk.dirty = true;
+        return true;
+    }
+
+    public void clear() {
+        mChunks.clear();
+        mLastChunk = null;
+        try {
+            mStore.clear();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 把修改过的chunk写回chunk store
+     */
+    public void flush() {
+        for (Chunk chunk : mChunks.values()) {
+            writeBack(chunk);
+        }
+    }
+
+    public int getLoadedChunkCount() {
+        return mChunks.size();
+    }
+
+    public int getMaxLoadedChunks() {
+        return mMaxLoadedChunks;
+    }
+
+    public int getChunkLoadCount() {
+        return mLoadCount;
+    }
+
+    public int getChunkEvictionCount() {
+        return mEvictionCount;
+    }
+
+    private int computeBit(int x, int y) {
+        return (x & mChunkMask) + ((y & mChunkMask) << mChunkShift);
+    }
+
+    private Chunk getChunk(int chunkX, int chunkY) {
+        // 寻路时相邻的格子大多在同一个chunk里,跳过哈希查找
+        Chunk chunk = mLastChunk;
+        if (chunk != null && chunk.x == chunkX && chunk.y == chunkY) {
+            return chunk;
+        }
+
+        long key = ((long) chunkY << 32) | (chunkX & 0xffffffffL);
+        chunk = mChunks.get(key);
+        if (chunk == null) {
+            chunk = loadChunk(chunkX, chunkY);
+            mChunks.put(key, chunk);
+            evictIfNeeded();
+        }
+        mLastChunk = chunk;
+        return chunk;
+    }
+
+    private Chunk loadChunk(int chunkX, int chunkY) {
+        long[] words;
+        try {
+            words = mStore.load(chunkX, chunkY, mWordCount);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        mLoadCount++;
+        return new Chunk(chunkX, chunkY, words != null ? words : new long[mWordCount]);
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<Long, Chunk>> it = mChunks.entrySet().iterator();
+        while (mChunks.size() > mMaxLoadedChunks && it.hasNext()) {
+            Chunk chunk = it.next().getValue();
+            writeBack(chunk);
+            it.remove();
+            mEvictionCount++;
+            if (chunk == mLastChunk) {
+                mLastChunk = null;
+            }
+        }
+    }
+
+    private void writeBack(Chunk chunk) {
+        if (!chunk.dirty) {
+            return;
+        }
+        try {
+            mStore.save(chunk.x, chunk.y, chunk.words);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        chunk.dirty = false;
+    }
+
+    private static class Chunk {
+        final int x;
+        final int y;
+        final long[] words;
+        boolean dirty;
+
+        Chunk(int x, int y, long[] words) {
+            this.x = x;
+            this.y = y;
+            this.words = words;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package me.linjw.pathfinding;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * 连通区域的编号,两个格子编号不同说明它们之间肯定没有路径
+ */
+public class ComponentIndex {
+    public static final int NO_COMPONENT = -1;
+    private static final String CACHE_NAME = "components";
+
+    private final int mWidth;
+    private final IntBuffer mLabels;
+
+    private ComponentIndex(int width, IntBuffer labels) {
+        mWidth = width;
+        mLabels = labels;
+    }
+
+    /**
+     * @return 障碍物返回NO_COMPONENT
+     */
+    public int getComponent(int x, int y) {
+        return mLabels.get(x + y * mWidth);
+    }
+
+    public boolean isConnected(int x1, int y1, int x2, int y2) {
+        int component = getComponent(x1, y1);
+        return component != NO_COMPONENT && component == getComponent(x2, y2);
+    }
+
+    /**
+     * 优先从缓存读取,缓存不存在或者地图已经改变时重新计算并写回缓存
+     */
+    static ComponentIndex obtain(GridMap grid, IndexCache cache) {
+        if (cache == null) {
+            return build(grid);
+        }
+
+        IntBuffer labels = cache.load(CACHE_NAME, grid.getWidth(), grid.getHeight(), grid.computeHash());
+        if (labels != null && labels.remaining() == grid.getWidth() * grid.getHeight()) {
+            return new ComponentIndex(grid.getWidth(), labels);
+        }
+
+        ComponentIndex index = build(grid);
+        cache.save(CACHE_NAME, grid.getWidth(), grid.getHeight(), grid.computeHash(), index.mLabels);
+        return index;
+    }
+
+    static ComponentIndex build(GridMap grid) {
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        int[] labels = new int[width * height];
+        Arrays.fill(labels, NO_COMPONENT);
+
+        // 广度优先搜索给每个连通区域编号
+        int[] queue = new int[labels.length];
+        int component = 0;
+        for (int index = 0; index < labels.length; index++) {
+            if (labels[index] != NO_COMPONENT || grid.isUnreachable(index % width, index / width)) {
+                continue;
+            }
+
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = index;
+            labels[index] = component;
+            while (head < tail) {
+                int current = queue[head++];
+                int x = current % width;
+                int y = current / width;
+                if (x > 0 && labels[current - 1] == NO_COMPONENT && !grid.isUnreachable(x - 1, y)) {
+                    labels[current - 1] = component;
+                    queue[tail++] = current - 1;
+                }
+                if (x + 1 < width && labels[current + 1] == NO_COMPONENT && !grid.isUnreachable(x + 1, y)) {
+                    labels[current + 1] = component;
+                    queue[tail++] = current + 1;
+                }
+                if (y > 0 && labels[current - width] == NO_COMPONENT && !grid.isUnreachable(x, y - 1)) {
+                    labels[current - width] = component;
+                    queue[tail++] = current - width;
+                }
+                if (y + 1 < height && labels[current + width] == NO_COMPONENT && !grid.isUnreachable(x, y + 1)) {
+                    labels[current + width] = component;
+                    queue[tail++] = current + width;
+                }
+            }
+            component++;
+        }
+        return new ComponentIndex(width, IntBuffer.wrap(labels));
+    }
+}
@@ -0,0 +1,89 @@
+package me.linjw.pathfinding;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+public class FileChunkStore implements IChunkStore {
+    private static final String SUFFIX = ".chunk";
+
+    private final File mDir;
+
+    public FileChunkStore(File dir) {
+        mDir = dir;
+    }
+
+    @Override
+    public long[] load(int chunkX, int chunkY, int wordCount) throws IOException {
+        File file = getChunkFile(chunkX, chunkY);
+        if (!file.exists()) {
+            return null;
+        }
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            long[] words = new long[wordCount];
+            for (int i = 0; i < wordCount; i++) {
+                words[i] = in.readLong();
+            }
+            return words;
+        } finally {
+            in.close();
+        }
+    }
+
+    @Override
+    public void save(int chunkX, int chunkY, long[] words) throws IOException {
+        File file = getChunkFile(chunkX, chunkY);
+        if (isEmpty(words)) {
+            // 没有障碍物的chunk不落盘,读取时返回null即可
+            if (file.exists() && !file.delete()) {
+                throw new IOException("can't delete " + file);
+            }
+            return;
+        }
+
+        if (!mDir.exists() && !mDir.mkdirs()) {
+            throw new IOException("can't create " + mDir);
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    @Override
+    public void clear() throws IOException {
+        File[] files = mDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(SUFFIX) && !file.delete()) {
+                throw new IOException("can't delete " + file);
+            }
+        }
+    }
+
+    private File getChunkFile(int chunkX, int chunkY) {
+        return new File(mDir, chunkX + "_" + chunkY + SUFFIX);
+    }
+
+    private static boolean isEmpty(long[] words) {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,203 @@
+package me.linjw.pathfinding;
+
+import android.graphics.Point;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fringe Search寻路,路径长度和A*一样是最短的.
+ * <p>
+ * 不使用优先队列,而是用一个双向链表保存边缘格子,每一轮只展开f值不超过阈值的格子,
+ * 超过阈值的格子留到下一轮,下一轮的阈值取这一轮跳过的格子里最小的f值.
+ * 展开的子格子插在当前格子后面,这一轮马上就会访问到.
+ * 链表和搜索状态都保存在按格子索引的数组里,搜索过程中不创建对象
+ */
+public class FringeFinder implements IPathFinder {
+    private static final int NO_PARENT = -1;
+    private static final int[][] MOVE = {
+            {-1, 0}, // 往左走
+            {1, 0}, // 往右走
+            {0, -1}, // 往上走
+            {0, 1} // 往下走
+    };
+
+    private GridMap mGridMap = new GridMap();
+    private int mExpandedCount;
+
+    // 下面的数组按格子索引x + y * width保存搜索状态,
+    // mSearchId[i]不等于当前搜索的编号时说明这个格子在本次搜索中还没有访问过
+    private int[] mSearchId = new int[0];
+    private int mCurrentSearchId = 0;
+    private int[] mDistanceToStart = new int[0];
+    private int[] mParent = new int[0];
+    private boolean[] mInFringe = new boolean[0];
+
+    // 边缘格子的双向循环链表,最后一个元素mHead是链表头
+    private int[] mNext = new int[1];
+    private int[] mPrev = new int[1];
+    private int mHead = 0;
+
+    @Override
+    public void setSize(int width, int height) {
+        mGridMap.setSize(width, height);
+        int size = width * height;
+        mSearchId = new int[size];
+        mCurrentSearchId = 0;
+        mDistanceToStart = new int[size];
+        mParent = new int[size];
+        mInFringe = new boolean[size];
+        mNext = new int[size + 1];
+        mPrev = new int[size + 1];
+        mHead = size;
+    }
+
+    @Override
+    public boolean addUnreachable(Point point) {
+        return mGridMap.addUnreachable(point.x, point.y);
+    }
+
+    @Override
+    public boolean removeUnreachable(Point point) {
+        return mGridMap.removeUnreachable(point.x, point.y);
+    }
+
+    @Override
+    public void clearUnreachable() {
+        mGridMap.clear();
+    }
+
+    @Override
+    public List<Point> getPath(Point start, Point end) {
+        mExpandedCount = 0;
+        if (!isWalkable(start.x, start.y) || !isWalkable(end.x, end.y)) {
+            return null;
+        }
+
+        if (start.x == end.x && start.y == end.y) {
+            List<Point> path = new ArrayList<>();
+            path.add(start);
+            return path;
+        }
+
+        int width = mGridMap.getWidth();
+        int startIndex = start.x + start.y * width;
+        int endIndex = end.x + end.y * width;
+        beginSearch();
+
+        visit(startIndex);
+        mDistanceToStart[startIndex] = 0;
+        insertAfter(mHead, startIndex);
+
+        int threshold = computeDistance(start.x, start.y, end);
+        while (mNext[mHead] != mHead) {
+            int nextThreshold = Integer.MAX_VALUE;
+            int current = mNext[mHead];
+            while (current != mHead) {
+                int x = current % width;
+                int y = current / width;
+                int distanceToStart = mDistanceToStart[current];
+                int distanceTotal = distanceToStart + computeDistance(x, y, end);
+                if (distanceTotal > threshold) {
+                    // 留到下一轮
+                    nextThreshold = Math.min(nextThreshold, distanceTotal);
+                    current = mNext[current];
+                    continue;
+                }
+
+                if (current == endIndex) {
+                    return buildPath(start, end, endIndex);
+                }
+
+                mExpandedCount++;
+                for (int i = MOVE.length - 1; i >= 0; i--) {
+                    int nextX = x + MOVE[i][0];
+                    int nextY = y + MOVE[i][1];
+                    if (!isWalkable(nextX, nextY)) {
+                        continue;
+                    }
+
+                    int next = nextX + nextY * width;
+                    int nextDistanceToStart = distanceToStart + 1;
+                    if (mSearchId[next] != mCurrentSearchId) {
+                        visit(next);
+                    } else if (nextDistanceToStart >= mDistanceToStart[next]) {
+                        continue;
+                    } else if (mInFringe[next]) {
+                        remove(next);
+                    }
+
+                    mDistanceToStart[next] = nextDistanceToStart;
+                    mParent[next] = current;
+                    insertAfter(current, next);
+                }
+
+                int following = mNext[current];
+                remove(current);
+                current = following;
+            }
+            threshold = nextThreshold;
+        }
+        return null;
+    }
+
+    @Override
+    public int getExpandedCount() {
+        return mExpandedCount;
+    }
+
+    private List<Point> buildPath(Point start, Point end, int endIndex) {
+        int width = mGridMap.getWidth();
+        List<Point> path = new ArrayList<>();
+        path.add(end);
+        int index = mParent[endIndex];
+        while (mParent[index] != NO_PARENT) {
+            path.add(new Point(index % width, index / width));
+            index = mParent[index];
+        }
+        path.add(start);
+        return path;
+    }
+
+    private boolean isWalkable(int x, int y) {
+        return mGridMap.isInside(x, y) && !mGridMap.isUnreachable(x, y);
+    }
+
+    private static int computeDistance(int x, int y, Point end) {
+        return Math.abs(end.x - x) + Math.abs(end.y - y);
+    }
+
+    private void beginSearch() {
+        mCurrentSearchId++;
+        if (mCurrentSearchId == 0) {
+            // 编号溢出后重新开始,清空旧的编号
+            Arrays.fill(mSearchId, 0);
+            mCurrentSearchId = 1;
+        }
+        mNext[mHead] = mHead;
+        mPrev[mHead] = mHead;
+    }
+
+    private void visit(int index) {
+        mSearchId[index] = mCurrentSearchId;
+        mDistanceToStart[index] = Integer.MAX_VALUE;
+        mParent[index] = NO_PARENT;
+        mInFringe[index] = false;
+    }
+
+    private void insertAfter(int position, int index) {
+        int next = mNext[position];
+        mNext[index] = next;
+        mPrev[index] = position;
+        mPrev[next] = index;
+        mNext[position] = index;
+        mInFringe[index] = true;
+    }
+
+    private void remove(int index) {
+        mNext[mPrev[index]] = mNext[index];
+        mPrev[mNext[index]] = mPrev[index];
+        mInFringe[index] = false;
+    }
+}
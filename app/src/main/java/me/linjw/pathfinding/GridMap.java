@@ -0,0 +1,109 @@
+package me.linjw.pathfinding;
+
+import java.util.Arrays;
+
+/**
+ * 用位图保存障碍物,每一行按64位对齐,第x列在该行第x / 64个long的第x % 64位
+ */
+public class GridMap {
+    private int mWidth;
+    private int mHeight;
+    private int mWordsPerRow;
+    private long[] mWords = new long[0];
+    private long mHash;
+    private boolean mIsHashValid = false;
+
+    public void setSize(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        mWordsPerRow = (width + 63) >>> 6;
+        mWords = new long[mWordsPerRow * height];
+        mIsHashValid = false;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getWordsPerRow() {
+        return mWordsPerRow;
+    }
+
+    /**
+     * 直接返回内部数组,调用方不能修改
+     */
+    long[] getWords() {
+        return mWords;
+    }
+
+    public boolean isInside(int x, int y) {
+        return x >= 0 && x < mWidth && y >= 0 && y < mHeight;
+    }
+
+    public boolean isUnreachable(int x, int y) {
+        return (mWords[y * mWordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    /**
+     * @return 格子之前不是障碍物返回true
+     */
+    public boolean addUnreachable(int x, int y) {
+        if (!isInside(x, y) || isUnreachable(x, y)) {
+            return false;
+        }
+        mWords[y * mWordsPerRow + (x >>> 6)] |= 1L << x;
+        mIsHashValid = false;
+        return true;
+    }
+
+    /**
+     * @return 格子之前是障碍物返回true
+     */
+    public boolean removeUnreachable(int x, int y) {
+        if (!isInside(x, y) || !isUnreachable(x, y)) {
+            return false;
+        }
+        mWords[y * mWordsPerRow + (x >>> 6)] &= ~(1L << x);
+        mIsHashValid = false;
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(mWords, 0);
+        mIsHashValid = false;
+    }
+
+    /**
+     * 地图大小和障碍物的64位hash,用来判断缓存的索引是否还能用
+     */
+    public long computeHash() {
+        if (!mIsHashValid) {
+            long hash = 0xcbf29ce484222325L;
+            hash = mix(hash, ((long) mWidth << 32) | mHeight);
+            for (long word : mWords) {
+                hash = mix(hash, word);
+            }
+            mHash = hash;
+            mIsHashValid = true;
+        }
+        return mHash;
+    }
+
+    private static long mix(long hash, long value) {
+        hash = (hash ^ value) * 0x9e3779b97f4a7c15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    /**
+     * 第row行第word个long里可以通行的格子,超出地图宽度的位为0
+     */
+    long getFreeWord(int row, int word) {
+        long free = ~mWords[row * mWordsPerRow + word];
+        int remain = mWidth - (word << 6);
+        return remain >= 64 ? free : free & ((1L << remain) - 1);
+    }
+}
@@ -0,0 +1,14 @@
+package me.linjw.pathfinding;
+
+import java.io.IOException;
+
+public interface IChunkStore {
+    /**
+     * 读取chunk的障碍物数据,chunk不存在时返回null
+     */
+    long[] load(int chunkX, int chunkY, int wordCount) throws IOException;
+
+    void save(int chunkX, int chunkY, long[] words) throws IOException;
+
+    void clear() throws IOException;
+}
@@ -14,4 +14,9 @@ public interface IPathFinder {
     void clearUnreachable();
 
     List<Point> getPath(Point start, Point end);
+
+    /**
+     * 上一次寻路展开的格子数量
+     */
+    int getExpandedCount();
 }
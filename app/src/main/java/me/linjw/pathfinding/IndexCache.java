@@ -0,0 +1,166 @@
+package me.linjw.pathfinding;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * 把预处理得到的索引保存到磁盘,下次启动直接读取,不需要重新计算.
+ * <p>
+ * 文件格式(小端):
+ * magic(int) version(int) width(int) height(int) gridHash(long) count(int) reserved(int) data(int[count])
+ * <p>
+ * 读取时用mmap映射文件,返回的IntBuffer直接指向映射的内存,不会拷贝数据.
+ * 文件不存在、版本不同或者障碍物的hash对不上时返回null,由调用方重新计算
+ * <p>
+ * 文件名包含地图大小和障碍物的hash,不同的地图分开保存.
+ * 同一个名字最多保留MAX_FILES_PER_NAME个文件,保存时删除最久没有用过的
+ */
+public class IndexCache {
+    private static final int MAGIC = 0x58494650; // "PFIX"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final String SUFFIX = ".idx";
+    private static final int MAX_FILES_PER_NAME = 4;
+
+    private final File mDir;
+
+    public IndexCache(File dir) {
+        mDir = dir;
+    }
+
+    public IntBuffer load(String name, int width, int height, long gridHash) {
+        File file = getFile(name, width, height, gridHash);
+        if (!file.exists()) {
+            return null;
+        }
+
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                if (channel.size() < HEADER_SIZE) {
+                    return null;
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                if (buffer.getInt(0) != MAGIC
+                        || buffer.getInt(4) != VERSION
+                        || buffer.getInt(8) != width
+                        || buffer.getInt(12) != height
+                        || buffer.getLong(16) != gridHash) {
+                    return null;
+                }
+                int count = buffer.getInt(24);
+                if (count < 0 || HEADER_SIZE + count * 4L != channel.size()) {
+                    return null;
+                }
+                buffer.position(HEADER_SIZE);
+                // 更新修改时间,清理旧文件时按这个时间判断最近有没有用过
+                file.setLastModified(System.currentTimeMillis());
+                // 映射在channel关闭之后仍然有效
+                return buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            } finally {
+                raf.close();
+            }
+        } catch (IOException e) {
+            // 读不出来就当作没有缓存
+            return null;
+        }
+    }
+
+    /**
+     * @return 保存失败返回false,不影响寻路
+     */
+    public boolean save(String name, int width, int height, long gridHash, IntBuffer data) {
+        if (!mDir.exists() && !mDir.mkdirs()) {
+            return false;
+        }
+
+        IntBuffer src = data.duplicate();
+        src.rewind();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + src.remaining() * 4).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(width)
+                .putInt(height)
+                .putLong(gridHash)
+                .putInt(src.remaining())
+                .putInt(0);
+        buffer.asIntBuffer().put(src);
+        buffer.rewind();
+
+        // 先写到临时文件再改名,避免其他地方读到写了一半的文件
+        File file = getFile(name, width, height, gridHash);
+        File tmp = new File(mDir, file.getName() + ".tmp");
+        try {
+            RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+            try {
+                raf.setLength(0);
+                FileChannel channel = raf.getChannel();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } finally {
+                raf.close();
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            return false;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            return false;
+        }
+        prune(name, file);
+        return true;
+    }
+
+    /**
+     * 删除同一个名字下最久没有用过的文件,连同刚保存的keep一共保留MAX_FILES_PER_NAME个.
+     * 文件修改时间的精度可能只有秒,所以keep单独处理,不参与排序
+     */
+    private void prune(String name, File keep) {
+        String prefix = name + "-";
+        File[] files = mDir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        int count = 0;
+        for (File file : files) {
+            String fileName = file.getName();
+            if (fileName.equals(name + SUFFIX)) {
+                // 旧版本不带hash的文件
+                file.delete();
+            } else if (fileName.startsWith(prefix) && fileName.endsWith(SUFFIX) && !file.equals(keep)) {
+                files[count++] = file;
+            }
+        }
+        if (count < MAX_FILES_PER_NAME) {
+            return;
+        }
+
+        File[] cached = Arrays.copyOf(files, count);
+        Arrays.sort(cached, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(b.lastModified(), a.lastModified());
+            }
+        });
+        for (int i = MAX_FILES_PER_NAME - 1; i < cached.length; i++) {
+            cached[i].delete();
+        }
+    }
+
+    private File getFile(String name, int width, int height, long gridHash) {
+        return new File(mDir, name + "-" + width + "x" + height + "-" + Long.toHexString(gridHash) + SUFFIX);
+    }
+}
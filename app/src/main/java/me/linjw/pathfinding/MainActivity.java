@@ -5,6 +5,7 @@ import android.graphics.Point;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 import android.view.View;
+import android.widget.CheckBox;
 import android.widget.EditText;
 import android.widget.Toast;
 
@@ -29,6 +30,8 @@ public class MainActivity extends AppCompatActivity {
     private int mHeight = 10;
     private EditText mWidthEdit;
     private EditText mHeightEdit;
+    private CheckBox mProgressiveCheck;
+    private Thread mSearchThread;
 
     private IPathFinder mFinder = new AStartFinder();
 
@@ -39,6 +42,7 @@ public class MainActivity extends AppCompatActivity {
 
         mWidthEdit = findViewById(R.id.width);
         mHeightEdit = findViewById(R.id.height);
+        mProgressiveCheck = findViewById(R.id.progressive);
 
         mFinder.setSize(mWidth, mHeight);
 
@@ -125,6 +129,11 @@ public class MainActivity extends AppCompatActivity {
     }
 
     public void onClick(View view) {
+        if (mSearchThread != null) {
+            // 逐帧显示的搜索还没结束
+            return;
+        }
+
         switch (view.getId()) {
             case R.id.start:
                 mMode = MODE_START;
@@ -154,26 +163,90 @@ public class MainActivity extends AppCompatActivity {
         }
 
         mIsFound = true;
+
+        if (mProgressiveCheck.isChecked() && mFinder instanceof AStartFinder) {
+            findProgressive((AStartFinder) mFinder);
+            return;
+        }
+
         List<Point> path = mFinder.getPath(mStart, mEnd);
 
-        if (mFinder instanceof AStartFinder){
+        if (mFinder instanceof AStartFinder) {
             AStartFinder finder = (AStartFinder) mFinder;
-            for (AStartFinder.Compute c : finder.getOpenPoints()) {
-                mMapView.setCellNumber(c.getPoint().y, c.getPoint().x, c.getDistanceTotal());
+            List<AStartFinder.Compute> openPoints = finder.getOpenPoints();
+            List<AStartFinder.Compute> closePoints = finder.getClosePoints();
+            int count = openPoints.size() + closePoints.size();
+            int[] rows = new int[count];
+            int[] columns = new int[count];
+            int[] numbers = new int[count];
+            int i = 0;
+            for (AStartFinder.Compute c : openPoints) {
+                rows[i] = c.getPoint().y;
+                columns[i] = c.getPoint().x;
+                numbers[i++] = c.getDistanceTotal();
             }
-            for (AStartFinder.Compute c : finder.getClosePoints()) {
-                mMapView.setCellNumber(c.getPoint().y, c.getPoint().x, c.getDistanceTotal());
+            for (AStartFinder.Compute c : closePoints) {
+                rows[i] = c.getPoint().y;
+                columns[i] = c.getPoint().x;
+                numbers[i++] = c.getDistanceTotal();
             }
+            mMapView.setCellNumbers(rows, columns, numbers);
         }
 
-        if (path != null) {
-            for (int i = 1; i < path.size() - 1; i++) {
-                Point point = path.get(i);
-                mMapView.setCellColor(point.y, point.x, COLOR_PATH);
+        showPath(path);
+    }
+
+    /**
+     * 在后台线程搜索,搜索过程中的开放列表和关闭列表逐帧显示到地图上
+     */
+    private void findProgressive(final AStartFinder finder) {
+        final Point start = new Point(mStart);
+        final Point end = new Point(mEnd);
+        mSearchThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                finder.setOnSearchListener(new AStartFinder.OnSearchListener() {
+                    @Override
+                    public void onOpen(AStartFinder.Compute compute) {
+                        mMapView.postCellNumber(compute.getPoint().y, compute.getPoint().x, compute.getDistanceTotal());
+                    }
+
+                    @Override
+                    public void onClose(AStartFinder.Compute compute) {
+                        mMapView.postCellNumber(compute.getPoint().y, compute.getPoint().x, compute.getDistanceTotal());
+                    }
+                });
+                final List<Point> path = finder.getPath(start, end);
+                finder.setOnSearchListener(null);
+
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        mSearchThread = null;
+                        showPath(path);
+                    }
+                });
             }
-        } else {
+        });
+        mSearchThread.start();
+    }
+
+    private void showPath(List<Point> path) {
+        if (path == null) {
             Toast.makeText(this, R.string.no_path, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        // 不包括起点和终点
+        int count = Math.max(0, path.size() - 2);
+        int[] rows = new int[count];
+        int[] columns = new int[count];
+        for (int i = 0; i < count; i++) {
+            Point point = path.get(i + 1);
+            rows[i] = point.y;
+            columns[i] = point.x;
         }
+        mMapView.setCellColors(rows, columns, COLOR_PATH);
     }
 
     private void reset() {
@@ -1,9 +1,11 @@
 package me.linjw.pathfinding;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.RectF;
 import android.support.annotation.Nullable;
 import android.util.AttributeSet;
 import android.view.GestureDetector;
@@ -11,12 +13,17 @@ import android.view.MotionEvent;
 import android.view.ScaleGestureDetector;
 import android.view.View;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 public class MapView extends View implements
         GestureDetector.OnGestureListener,
         ScaleGestureDetector.OnScaleGestureListener {
+    // 格子小于这个像素时不再画网格和数字,直接画缩略图
+    private static final int LOD_CELL_LENGTH = 8;
+    private static final int OVERVIEW_MAX_SIZE = 1024;
+
     private int mTextColor = Color.BLACK;
     private int mColumn;
     private int mRow;
@@ -31,8 +38,37 @@ public class MapView extends View implements
     private Map<Integer, Map<Integer, Integer>> mCellColorMap = new HashMap<>();
     private Map<Integer, Map<Integer, String>> mCellNumberMap = new HashMap<>();
 
+    // 缩略图的一个像素对应mOverviewStep * mOverviewStep个格子,跟随格子颜色的修改增量更新
+    private Bitmap mOverview;
+    private int mOverviewStep;
+    private RectF mOverviewRect = new RectF();
+
     private OnCellClickedListener mOnCellClickedListener;
 
+    // 其他线程提交的数字先放到mPendingNumbers,下一帧再交换到mApplyingNumbers统一显示
+    private final Object mPendingLock = new Object();
+    private CellBuffer mPendingNumbers = new CellBuffer();
+    private CellBuffer mApplyingNumbers = new CellBuffer();
+    private boolean mIsApplyPosted = false;
+    private final Runnable mApplyPendingNumbers = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (mPendingLock) {
+                CellBuffer tmp = mApplyingNumbers;
+                mApplyingNumbers = mPendingNumbers;
+                mPendingNumbers = tmp;
+                mIsApplyPosted = false;
+            }
+            putCellNumbers(
+                    mApplyingNumbers.rows,
+                    mApplyingNumbers.columns,
+                    mApplyingNumbers.values,
+                    mApplyingNumbers.size);
+            mApplyingNumbers.size = 0;
+            invalidate();
+        }
+    };
+
     public MapView(Context context) {
         this(context, null);
     }
@@ -59,6 +95,11 @@ public class MapView extends View implements
             return;
         }
 
+        if (mCellLength * mScale < LOD_CELL_LENGTH) {
+            drawOverview(canvas, mCellLength * mScale);
+            return;
+        }
+
         int cellLength = (int) (mCellLength * mScale);
         int beginRow = clamp(mOriginY / cellLength, 0, mRow);
         int beginColumn = clamp(mOriginX / cellLength, 0, mColumn);
@@ -72,6 +113,84 @@ public class MapView extends View implements
         drawGrid(canvas, cellLength, beginX, beginY, numColumnShow, numRowShow);
     }
 
+    /**
+     * 缩小到看不清格子时只画缩略图,开销和地图大小无关
+     */
+    private void drawOverview(Canvas canvas, float cellLength) {
+        if (mOverview == null) {
+            createOverview();
+        }
+
+        float left = -mOriginX;
+        float top = -mOriginY;
+        float overviewCellLength = cellLength * mOverviewStep;
+        mOverviewRect.set(
+                left,
+                top,
+                left + mOverview.getWidth() * overviewCellLength,
+                top + mOverview.getHeight() * overviewCellLength);
+        mPaint.setFilterBitmap(false);
+        canvas.drawBitmap(mOverview, null, mOverviewRect, mPaint);
+
+        mPaint.setColor(Color.BLACK);
+        mPaint.setStyle(Paint.Style.STROKE);
+        canvas.drawRect(left, top, left + mColumn * cellLength, top + mRow * cellLength, mPaint);
+    }
+
+    private void createOverview() {
+        mOverviewStep = Math.max(1, (Math.max(mRow, mColumn) + OVERVIEW_MAX_SIZE - 1) / OVERVIEW_MAX_SIZE);
+        mOverview = Bitmap.createBitmap(
+                (mColumn + mOverviewStep - 1) / mOverviewStep,
+                (mRow + mOverviewStep - 1) / mOverviewStep,
+                Bitmap.Config.ARGB_8888);
+        for (Map.Entry<Integer, Map<Integer, Integer>> itRow : mCellColorMap.entrySet()) {
+            int row = itRow.getKey();
+            for (Map.Entry<Integer, Integer> itColumn : itRow.getValue().entrySet()) {
+                setOverviewPixel(row, itColumn.getKey(), itColumn.getValue());
+            }
+        }
+    }
+
+    private void releaseOverview() {
+        if (mOverview != null) {
+            mOverview.recycle();
+            mOverview = null;
+        }
+    }
+
+    private void setOverviewPixel(int row, int column, int color) {
+        if (mOverview == null || row < 0 || row >= mRow || column < 0 || column >= mColumn) {
+            return;
+        }
+        mOverview.setPixel(column / mOverviewStep, row / mOverviewStep, color);
+    }
+
+    /**
+     * 格子的颜色被清除后,用同一个缩略图像素里其他格子的颜色重新计算该像素
+     */
+    private void updateOverviewPixel(int row, int column) {
+        if (mOverview == null || row < 0 || row >= mRow || column < 0 || column >= mColumn) {
+            return;
+        }
+        int beginRow = row / mOverviewStep * mOverviewStep;
+        int beginColumn = column / mOverviewStep * mOverviewStep;
+        int color = Color.TRANSPARENT;
+        for (int r = beginRow; r < beginRow + mOverviewStep && color == Color.TRANSPARENT; r++) {
+            Map<Integer, Integer> rowCellColor = mCellColorMap.get(r);
+            if (rowCellColor == null) {
+                continue;
+            }
+            for (int c = beginColumn; c < beginColumn + mOverviewStep; c++) {
+                Integer cellColor = rowCellColor.get(c);
+                if (cellColor != null) {
+                    color = cellColor;
+                    break;
+                }
+            }
+        }
+        mOverview.setPixel(column / mOverviewStep, row / mOverviewStep, color);
+    }
+
     private void drawCellColor(
             Canvas canvas,
             int beginX,
@@ -195,11 +314,13 @@ public class MapView extends View implements
 
     public void setColumn(int column) {
         mColumn = column;
+        releaseOverview();
         invalidate();
     }
 
     public void setRow(int row) {
         mRow = row;
+        releaseOverview();
         invalidate();
     }
 
@@ -231,10 +352,14 @@ public class MapView extends View implements
             return false;
         }
 
-        int cellLength = (int) (mCellLength * mScale);
+        // 和onDraw保持一致:正常绘制时格子大小取整,只有画缩略图时才用浮点数
+        float cellLength = mCellLength * mScale;
+        if (cellLength >= LOD_CELL_LENGTH) {
+            cellLength = (int) cellLength;
+        }
 
-        int column = (int) ((mOriginX + e.getX()) / cellLength);
-        int row = (int) ((mOriginY + e.getY()) / cellLength);
+        int column = (int) Math.floor((mOriginX + e.getX()) / cellLength);
+        int row = (int) Math.floor((mOriginY + e.getY()) / cellLength);
         if (row >= 0
                 && row < mRow
                 && column >= 0
@@ -266,6 +391,7 @@ public class MapView extends View implements
     @Override
     public boolean onScale(ScaleGestureDetector detector) {
         mScale *= detector.getScaleFactor();
+        invalidate();
         return true;
     }
 
@@ -282,6 +408,7 @@ public class MapView extends View implements
     public void setCellColor(int row, int column, int color) {
         Map<Integer, Integer> rowCellColor = getRowCellColor(row, mCellColorMap);
         rowCellColor.put(column, color);
+        setOverviewPixel(row, column, color);
         invalidate();
     }
 
@@ -293,11 +420,15 @@ public class MapView extends View implements
     public void clearCellColor(int row, int column) {
         Map<Integer, Integer> rowCellColor = getRowCellColor(row, mCellColorMap);
         rowCellColor.remove(column);
+        updateOverviewPixel(row, column);
         invalidate();
     }
 
     public void clearAllCellColor() {
         mCellColorMap.clear();
+        if (mOverview != null) {
+            mOverview.eraseColor(Color.TRANSPARENT);
+        }
         invalidate();
     }
 
@@ -320,10 +451,62 @@ public class MapView extends View implements
     }
 
     public void clearAllCellNumber() {
+        synchronized (mPendingLock) {
+            mPendingNumbers.size = 0;
+        }
         mCellNumberMap.clear();
         invalidate();
     }
 
+    /**
+     * 批量设置格子的颜色,只刷新一次
+     */
+    public void setCellColors(int[] rows, int[] columns, int color) {
+        Map<Integer, Integer> rowCellColor = null;
+        for (int i = 0; i < rows.length; i++) {
+            // 相同行的格子连续出现时不用重复查找
+            if (rowCellColor == null || rows[i] != rows[i - 1]) {
+                rowCellColor = getRowCellColor(rows[i], mCellColorMap);
+            }
+            rowCellColor.put(columns[i], color);
+            setOverviewPixel(rows[i], columns[i], color);
+        }
+        invalidate();
+    }
+
+    /**
+     * 批量设置格子的数字,只刷新一次
+     */
+    public void setCellNumbers(int[] rows, int[] columns, int[] numbers) {
+        putCellNumbers(rows, columns, numbers, rows.length);
+        invalidate();
+    }
+
+    /**
+     * 可以在任意线程调用,提交的数字会攒到下一帧统一显示,
+     * 用于在搜索的过程中逐帧显示搜索进度而不阻塞UI线程
+     */
+    public void postCellNumber(int row, int column, int number) {
+        synchronized (mPendingLock) {
+            mPendingNumbers.add(row, column, number);
+            if (!mIsApplyPosted) {
+                mIsApplyPosted = true;
+                postOnAnimation(mApplyPendingNumbers);
+            }
+        }
+    }
+
+    private void putCellNumbers(int[] rows, int[] columns, int[] numbers, int count) {
+        Map<Integer, String> rowCellNumber = null;
+        for (int i = 0; i < count; i++) {
+            // 相同行的格子连续出现时不用重复查找
+            if (rowCellNumber == null || rows[i] != rows[i - 1]) {
+                rowCellNumber = getRowCellNumber(rows[i], mCellNumberMap);
+            }
+            rowCellNumber.put(columns[i], String.valueOf(numbers[i]));
+        }
+    }
+
     private Map<Integer, Integer> getRowCellColor(int row, Map<Integer, Map<Integer, Integer>> map) {
         Map<Integer, Integer> rowCell = map.get(row);
         if (rowCell == null) {
@@ -350,4 +533,23 @@ public class MapView extends View implements
     public interface OnCellClickedListener {
         void onCellClicked(MapView mapView, int row, int column);
     }
+
+    private static class CellBuffer {
+        int[] rows = new int[64];
+        int[] columns = new int[64];
+        int[] values = new int[64];
+        int size = 0;
+
+        void add(int row, int column, int value) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+                columns = Arrays.copyOf(columns, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            rows[size] = row;
+            columns[size] = column;
+            values[size] = value;
+            size++;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,168 @@
+package me.linjw.pathfinding;
+
+import java.util.Arrays;
+
+/**
+ * 从起点出发k步以内可以到达的格子
+ * <p>
+ * 格子按到起点的距离从小到大保存在getCells()里,索引为x + y * width,
+ * 距离为d的格子在[getLayerOffsets()[d], getLayerOffsets()[d + 1])区间内
+ */
+public class ReachableSet {
+    private final int mWidth;
+    private final int mHeight;
+    private final int mWordsPerRow;
+    private final long[] mBits;
+    private final int[] mCells;
+    private final int[] mLayerOffsets;
+
+    private ReachableSet(int width, int height, int wordsPerRow, long[] bits, int[] cells, int[] layerOffsets) {
+        mWidth = width;
+        mHeight = height;
+        mWordsPerRow = wordsPerRow;
+        mBits = bits;
+        mCells = cells;
+        mLayerOffsets = layerOffsets;
+    }
+
+    /**
+     * 按行对齐的位图,格式和GridMap一致
+     */
+    public long[] getBits() {
+        return mBits;
+    }
+
+    public int getWordsPerRow() {
+        return mWordsPerRow;
+    }
+
+    public int[] getCells() {
+        return mCells;
+    }
+
+    public int[] getLayerOffsets() {
+        return mLayerOffsets;
+    }
+
+    public int size() {
+        return mCells.length;
+    }
+
+    public int getMaxDistance() {
+        return mLayerOffsets.length - 2;
+    }
+
+    public boolean contains(int x, int y) {
+        if (x < 0 || x >= mWidth || y < 0 || y >= mHeight) {
+            return false;
+        }
+        return (mBits[y * mWordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    public int getCellX(int i) {
+        return mCells[i] % mWidth;
+    }
+
+    public int getCellY(int i) {
+        return mCells[i] / mWidth;
+    }
+
+    /**
+     * getCells()里第i个格子到起点的距离
+     */
+    public int getDistance(int i) {
+        int layer = Arrays.binarySearch(mLayerOffsets, i);
+        return layer >= 0 ? layer : -layer - 2;
+    }
+
+    /**
+     * 位并行的广度优先搜索,每次处理一个long也就是64个格子.
+     * 每一步的边界由上一步的边界左右移位,再加上上下两行得到,然后去掉障碍物和已经访问过的格子
+     */
+    static ReachableSet search(GridMap grid, int startX, int startY, int maxSteps) {
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        int wordsPerRow = grid.getWordsPerRow();
+        long[] visited = new long[wordsPerRow * height];
+        long[] frontier = new long[visited.length];
+        long[] next = new long[visited.length];
+
+        int startIndex = startY * wordsPerRow + (startX >>> 6);
+        visited[startIndex] = 1L << startX;
+        frontier[startIndex] = visited[startIndex];
+
+        int[] cells = new int[16];
+        int cellCount = 0;
+        cells[cellCount++] = startX + startY * width;
+        int[] layerOffsets = new int[Math.max(0, maxSteps) + 2];
+        layerOffsets[1] = cellCount;
+
+        int step = 0;
+        while (step < maxSteps) {
+            step++;
+            // 只处理step步以内可能到达的矩形区域,每一步都比上一步大一圈,
+            // 所以区域外的边界数据一定是0,不需要清空
+            int beginRow = Math.max(0, startY - step);
+            int endRow = Math.min(height - 1, startY + step);
+            int beginWord = Math.max(0, startX - step) >>> 6;
+            int endWord = Math.min(width - 1, startX + step) >>> 6;
+
+            boolean grown = false;
+            for (int row = beginRow; row <= endRow; row++) {
+                int rowOffset = row * wordsPerRow;
+                for (int word = beginWord; word <= endWord; word++) {
+                    int index = rowOffset + word;
+                    long f = frontier[index];
+                    long spread = (f << 1) | (f >>> 1);
+                    if (word > 0) {
+                        spread |= frontier[index - 1] >>> 63;
+                    }
+                    if (word + 1 < wordsPerRow) {
+                        spread |= frontier[index + 1] << 63;
+                    }
+                    if (row > 0) {
+                        spread |= frontier[index - wordsPerRow];
+                    }
+                    if (row + 1 < height) {
+                        spread |= frontier[index + wordsPerRow];
+                    }
+
+                    long bits = spread & grid.getFreeWord(row, word) & ~visited[index];
+                    next[index] = bits;
+                    if (bits == 0) {
+                        continue;
+                    }
+                    grown = true;
+                    visited[index] |= bits;
+
+                    int base = (word << 6) + row * width;
+                    while (bits != 0) {
+                        if (cellCount == cells.length) {
+                            cells = Arrays.copyOf(cells, cellCount * 2);
+                        }
+                        cells[cellCount++] = base + Long.numberOfTrailingZeros(bits);
+                        bits &= bits - 1;
+                    }
+                }
+            }
+
+            layerOffsets[step + 1] = cellCount;
+            if (!grown) {
+                step--;
+                break;
+            }
+
+            long[] tmp = frontier;
+            frontier = next;
+            next = tmp;
+        }
+
+        return new ReachableSet(
+                width,
+                height,
+                wordsPerRow,
+                visited,
+                Arrays.copyOf(cells, cellCount),
+                Arrays.copyOf(layerOffsets, step + 2));
+    }
+}
@@ -0,0 +1,325 @@
+package me.linjw.pathfinding;
+
+import android.graphics.Point;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Lazy Theta*任意角度寻路.
+ * 格子的父节点可以是任意一个看得见它的格子,所以返回的路径只包含拐点,不需要再做平滑处理.
+ * 父节点是否看得见要等到格子从开放列表取出时才检查,每个格子最多检查一次视线
+ */
+public class ThetaStarFinder implements IPathFinder {
+    private static final int NO_PARENT = -1;
+    private static final int[][] MOVE = {
+            {-1, 0}, // 往左走
+            {1, 0}, // 往右走
+            {0, -1}, // 往上走
+            {0, 1}, // 往下走
+            {-1, -1}, // 往左上走
+            {1, -1}, // 往右上走
+            {-1, 1}, // 往左下走
+            {1, 1} // 往右下走
+    };
+
+    private GridMap mGridMap = new GridMap();
+    private int mExpandedCount;
+
+    // 下面的数组按格子索引x + y * width保存搜索状态,
+    // mSearchId[i]不等于当前搜索的编号时说明这个格子在本次搜索中还没有访问过
+    private int[] mSearchId = new int[0];
+    private int mCurrentSearchId = 0;
+    private double[] mDistanceToStart = new double[0];
+    private double[] mDistanceTotal = new double[0];
+    private int[] mParent = new int[0];
+    private boolean[] mClosed = new boolean[0];
+
+    // 开放列表是按mDistanceTotal排序的二叉堆,mHeapPosition记录格子在堆里的位置,不在堆里为-1
+    private int[] mHeap = new int[0];
+    private int[] mHeapPosition = new int[0];
+    private int mHeapSize = 0;
+
+    @Override
+    public void setSize(int width, int height) {
+        mGridMap.setSize(width, height);
+        int size = width * height;
+        mSearchId = new int[size];
+        mCurrentSearchId = 0;
+        mDistanceToStart = new double[size];
+        mDistanceTotal = new double[size];
+        mParent = new int[size];
+        mClosed = new boolean[size];
+        mHeap = new int[size];
+        mHeapPosition = new int[size];
+    }
+
+    @Override
+    public boolean addUnreachable(Point point) {
+        return mGridMap.addUnreachable(point.x, point.y);
+    }
+
+    @Override
+    public boolean removeUnreachable(Point point) {
+        return mGridMap.removeUnreachable(point.x, point.y);
+    }
+
+    @Override
+    public void clearUnreachable() {
+        mGridMap.clear();
+    }
+
+    /**
+     * @return 第一个点是终点,最后一个点是起点,中间是路径的拐点
+     */
+    @Override
+    public List<Point> getPath(Point start, Point end) {
+        mExpandedCount = 0;
+        if (!isWalkable(start.x, start.y) || !isWalkable(end.x, end.y)) {
+            return null;
+        }
+
+        if (start.x == end.x && start.y == end.y) {
+            List<Point> path = new ArrayList<>();
+            path.add(start);
+            return path;
+        }
+
+        int width = mGridMap.getWidth();
+        int startIndex = start.x + start.y * width;
+        int endIndex = end.x + end.y * width;
+        beginSearch();
+
+        visit(startIndex);
+        mDistanceToStart[startIndex] = 0;
+        mParent[startIndex] = startIndex;
+        pushOrUpdate(startIndex, computeDistance(start.x, start.y, end.x, end.y));
+
+        while (mHeapSize > 0) {
+            int current = pop();
+            mExpandedCount++;
+            setVertex(current);
+            if (current == endIndex) {
+                return buildPath(start, end, endIndex);
+            }
+            mClosed[current] = true;
+
+            int x = current % width;
+            int y = current / width;
+            int parent = mParent[current];
+            int parentX = parent % width;
+            int parentY = parent / width;
+            for (int[] move : MOVE) {
+                int nextX = x + move[0];
+                int nextY = y + move[1];
+                if (!canMove(x, y, move[0], move[1])) {
+                    continue;
+                }
+
+                int next = nextX + nextY * width;
+                if (mSearchId[next] != mCurrentSearchId) {
+                    visit(next);
+                } else if (mClosed[next]) {
+                    continue;
+                }
+
+                // 先假设父节点看得见next,直接从父节点连过去
+                double distanceToStart = mDistanceToStart[parent]
+                        + computeDistance(parentX, parentY, nextX, nextY);
+                if (distanceToStart < mDistanceToStart[next]) {
+                    mDistanceToStart[next] = distanceToStart;
+                    mParent[next] = parent;
+                    pushOrUpdate(next, distanceToStart + computeDistance(nextX, nextY, end.x, end.y));
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 格子从开放列表取出时才检查父节点是否看得见它,
+     * 看不见的话从已经关闭的相邻格子里选一个最近的作为父节点
+     */
+    private void setVertex(int index) {
+        int width = mGridMap.getWidth();
+        int x = index % width;
+        int y = index / width;
+        int parent = mParent[index];
+        if (parent == index || hasLineOfSight(parent % width, parent / width, x, y)) {
+            return;
+        }
+
+        double best = Double.MAX_VALUE;
+        int bestParent = NO_PARENT;
+        for (int[] move : MOVE) {
+            if (!canMove(x, y, move[0], move[1])) {
+                continue;
+            }
+            int neighbor = (x + move[0]) + (y + move[1]) * width;
+            if (mSearchId[neighbor] != mCurrentSearchId || !mClosed[neighbor]) {
+                continue;
+            }
+            double distanceToStart = mDistanceToStart[neighbor] + computeDistance(0, 0, move[0], move[1]);
+            if (distanceToStart < best) {
+                best = distanceToStart;
+                bestParent = neighbor;
+            }
+        }
+        mParent[index] = bestParent;
+        mDistanceToStart[index] = best;
+    }
+
+    /**
+     * 检查两个格子中心的连线经过的所有格子(supercover)是否都可以通行.
+     * 连线刚好穿过格子的角时,角两边的格子都必须可以通行,和斜着走不能切角的规则一致
+     */
+    boolean hasLineOfSight(int x0, int y0, int x1, int y1) {
+        int dx = Math.abs(x1 - x0);
+        int dy = Math.abs(y1 - y0);
+        int stepX = x1 > x0 ? 1 : -1;
+        int stepY = y1 > y0 ? 1 : -1;
+        int x = x0;
+        int y = y0;
+        int error = dx - dy;
+        dx *= 2;
+        dy *= 2;
+
+        for (int n = dx / 2 + dy / 2; n > 0; n--) {
+            if (error > 0) {
+                x += stepX;
+                error -= dy;
+            } else if (error < 0) {
+                y += stepY;
+                error += dx;
+            } else {
+                // 刚好穿过角
+                if (!isWalkable(x + stepX, y) || !isWalkable(x, y + stepY)) {
+                    return false;
+                }
+                x += stepX;
+                y += stepY;
+                error += dx - dy;
+                n--;
+            }
+            if (!isWalkable(x, y)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int getExpandedCount() {
+        return mExpandedCount;
+    }
+
+    private List<Point> buildPath(Point start, Point end, int endIndex) {
+        int width = mGridMap.getWidth();
+        List<Point> path = new ArrayList<>();
+        path.add(end);
+        int index = mParent[endIndex];
+        while (mParent[index] != index) {
+            path.add(new Point(index % width, index / width));
+            index = mParent[index];
+        }
+        path.add(start);
+        return path;
+    }
+
+    private boolean isWalkable(int x, int y) {
+        return mGridMap.isInside(x, y) && !mGridMap.isUnreachable(x, y);
+    }
+
+    /**
+     * 斜着走时两边的格子都必须可以通行
+     */
+    private boolean canMove(int x, int y, int dx, int dy) {
+        if (!isWalkable(x + dx, y + dy)) {
+            return false;
+        }
+        return dx == 0 || dy == 0 || (isWalkable(x + dx, y) && isWalkable(x, y + dy));
+    }
+
+    private static double computeDistance(int x0, int y0, int x1, int y1) {
+        int dx = x1 - x0;
+        int dy = y1 - y0;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private void beginSearch() {
+        mCurrentSearchId++;
+        if (mCurrentSearchId == 0) {
+            // 编号溢出后重新开始,清空旧的编号
+            Arrays.fill(mSearchId, 0);
+            mCurrentSearchId = 1;
+        }
+        mHeapSize = 0;
+    }
+
+    private void visit(int index) {
+        mSearchId[index] = mCurrentSearchId;
+        mDistanceToStart[index] = Double.MAX_VALUE;
+        mParent[index] = NO_PARENT;
+        mClosed[index] = false;
+        mHeapPosition[index] = -1;
+    }
+
+    private void pushOrUpdate(int index, double distanceTotal) {
+        mDistanceTotal[index] = distanceTotal;
+        int position = mHeapPosition[index];
+        if (position < 0) {
+            position = mHeapSize++;
+            mHeap[position] = index;
+            mHeapPosition[index] = position;
+        }
+        siftUp(position);
+    }
+
+    private int pop() {
+        int top = mHeap[0];
+        mHeapPosition[top] = -1;
+        mHeapSize--;
+        if (mHeapSize > 0) {
+            mHeap[0] = mHeap[mHeapSize];
+            mHeapPosition[mHeap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int position) {
+        int index = mHeap[position];
+        while (position > 0) {
+            int parentPosition = (position - 1) >>> 1;
+            int parent = mHeap[parentPosition];
+            if (mDistanceTotal[parent] <= mDistanceTotal[index]) {
+                break;
+            }
+            mHeap[position] = parent;
+            mHeapPosition[parent] = position;
+            position = parentPosition;
+        }
+        mHeap[position] = index;
+        mHeapPosition[index] = position;
+    }
+
+    private void siftDown(int position) {
+        int index = mHeap[position];
+        int half = mHeapSize >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            if (child + 1 < mHeapSize && mDistanceTotal[mHeap[child + 1]] < mDistanceTotal[mHeap[child]]) {
+                child++;
+            }
+            if (mDistanceTotal[index] <= mDistanceTotal[mHeap[child]]) {
+                break;
+            }
+            mHeap[position] = mHeap[child];
+            mHeapPosition[mHeap[position]] = position;
+            position = child;
+        }
+        mHeap[position] = index;
+        mHeapPosition[index] = position;
+    }
+}
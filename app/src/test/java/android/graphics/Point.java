@@ -0,0 +1,45 @@
+package android.graphics;
+
+/**
+ * 本地单元测试使用的android.jar里所有方法都是空实现,Point的构造函数不会给x和y赋值,
+ * 测试目录下的同名类会排在android.jar前面,用来代替它
+ */
+public class Point {
+    public int x;
+    public int y;
+
+    public Point() {
+    }
+
+    public Point(int x, int y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    public Point(Point src) {
+        this.x = src.x;
+        this.y = src.y;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Point)) {
+            return false;
+        }
+        Point point = (Point) o;
+        return x == point.x && y == point.y;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * x + y;
+    }
+
+    @Override
+    public String toString() {
+        return "Point(" + x + ", " + y + ")";
+    }
+}
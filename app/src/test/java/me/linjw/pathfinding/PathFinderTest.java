@@ -0,0 +1,495 @@
+package me.linjw.pathfinding;
+
+import android.graphics.Point;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 在固定种子生成的随机地图上对比所有寻路引擎和广度优先搜索的结果,
+ * 并限制每种地图上展开的格子数和分配的内存,优化导致多做了工作或者路径不是最短时测试失败
+ */
+public class PathFinderTest {
+    private static final int MAP_SIZE = 63;
+    private static final int QUERY_COUNT = 50;
+    private static final long SEED = 20181019L;
+
+    private static final String ENGINE_ASTAR = "AStartFinder";
+    private static final String ENGINE_CHUNKED = "ChunkedAStartFinder";
+    private static final String ENGINE_FRINGE = "FringeFinder";
+    private static final String ENGINE_THETA = "ThetaStarFinder";
+    private static final String[] ENGINES = {ENGINE_ASTAR, ENGINE_CHUNKED, ENGINE_FRINGE, ENGINE_THETA};
+
+    private static final String WORKLOAD_OPEN = "open";
+    private static final String WORKLOAD_CLUTTERED = "cluttered";
+    private static final String WORKLOAD_MAZE = "maze";
+    private static final String[] WORKLOADS = {WORKLOAD_OPEN, WORKLOAD_CLUTTERED, WORKLOAD_MAZE};
+
+    // 引擎, 地图, QUERY_COUNT次寻路展开的格子总数上限, 分配的内存上限(字节).
+    // 展开的格子数在现有实现的基础上留了10%的余量,分配的内存留了一倍的余量
+    private static final Object[][] BUDGETS = {
+            {ENGINE_ASTAR, WORKLOAD_OPEN, 3500, 3000000L},
+            {ENGINE_ASTAR, WORKLOAD_CLUTTERED, 32000, 16000000L},
+            {ENGINE_ASTAR, WORKLOAD_MAZE, 55000, 26000000L},
+            {ENGINE_CHUNKED, WORKLOAD_OPEN, 3500, 4000000L},
+            {ENGINE_CHUNKED, WORKLOAD_CLUTTERED, 37000, 40000000L},
+            {ENGINE_CHUNKED, WORKLOAD_MAZE, 55000, 60000000L},
+            {ENGINE_FRINGE, WORKLOAD_OPEN, 3500, 200000L},
+            {ENGINE_FRINGE, WORKLOAD_CLUTTERED, 38000, 300000L},
+            {ENGINE_FRINGE, WORKLOAD_MAZE, 55000, 1500000L},
+            {ENGINE_THETA, WORKLOAD_OPEN, 4700, 50000L},
+            {ENGINE_THETA, WORKLOAD_CLUTTERED, 42000, 200000L},
+            {ENGINE_THETA, WORKLOAD_MAZE, 57000, 500000L},
+    };
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void pathsAreValidAndShortest() {
+        for (String workload : WORKLOADS) {
+            TestMap map = TestMap.generate(workload, SEED);
+            for (String engine : ENGINES) {
+                IPathFinder finder = createFinder(engine, map);
+                for (Point[] query : map.queries) {
+                    String message = engine + " " + workload + " " + query[0] + " -> " + query[1];
+                    int distance = map.bfs(query[0])[map.index(query[1])];
+                    List<Point> path = finder.getPath(query[0], query[1]);
+                    if (distance < 0) {
+                        assertNull(message, path);
+                    } else if (ENGINE_THETA.equals(engine)) {
+                        checkAnyAnglePath(message, map, path, query[0], query[1], distance);
+                    } else {
+                        checkGridPath(message, map, path, query[0], query[1], distance);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void staysWithinBudgets() {
+        for (Object[] budget : BUDGETS) {
+            String engine = (String) budget[0];
+            String workload = (String) budget[1];
+            int maxExpanded = (Integer) budget[2];
+            long maxAllocated = (Long) budget[3];
+
+            TestMap map = TestMap.generate(workload, SEED);
+            IPathFinder finder = createFinder(engine, map);
+            int expanded = 0;
+            long allocatedBefore = getAllocatedBytes();
+            for (Point[] query : map.queries) {
+                finder.getPath(query[0], query[1]);
+                expanded += finder.getExpandedCount();
+            }
+            long allocatedAfter = getAllocatedBytes();
+
+            String message = engine + " " + workload;
+            assertTrue(message + " expanded " + expanded + " > " + maxExpanded, expanded <= maxExpanded);
+            if (allocatedBefore >= 0 && allocatedAfter >= 0) {
+                long allocated = allocatedAfter - allocatedBefore;
+                assertTrue(message + " allocated " + allocated + " > " + maxAllocated, allocated <= maxAllocated);
+            }
+        }
+    }
+
+    @Test
+    public void reachableMatchesBfs() {
+        for (String workload : WORKLOADS) {
+            TestMap map = TestMap.generate(workload, SEED);
+            AStartFinder finder = (AStartFinder) createFinder(ENGINE_ASTAR, map);
+            for (int i = 0; i < map.queries.size(); i++) {
+                Point start = map.queries.get(i)[0];
+                int maxSteps = i * 3;
+                String message = workload + " " + start + " steps " + maxSteps;
+                int[] distances = map.bfs(start);
+                ReachableSet reachable = finder.getReachable(start, maxSteps);
+
+                int count = 0;
+                for (int index = 0; index < distances.length; index++) {
+                    boolean expected = distances[index] >= 0 && distances[index] <= maxSteps;
+                    assertEquals(message, expected, reachable.contains(index % map.width, index / map.width));
+                    if (expected) {
+                        count++;
+                    }
+                }
+                assertEquals(message, count, reachable.size());
+                for (int j = 0; j < reachable.size(); j++) {
+                    assertEquals(message, distances[reachable.getCells()[j]], reachable.getDistance(j));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void chunkedFinderRespectsBounds() {
+        ChunkedAStartFinder finder = new ChunkedAStartFinder(
+                new ChunkedWorld(new MemoryChunkStore(), 4, 4 * (32 + 64)), 20);
+        finder.setSize(16, 16);
+
+        // 起点或终点在世界外面时不搜索
+        assertNull(finder.getPath(new Point(0, 0), new Point(16, 0)));
+        assertNull(finder.getPath(new Point(-1, 0), new Point(5, 0)));
+        assertEquals(0, finder.getExpandedCount());
+        assertEquals(0, finder.getChunkLoadCount());
+
+        List<Point> path = finder.getPath(new Point(0, 0), new Point(5, 0));
+        assertNotNull(path);
+        assertEquals(6, path.size());
+        assertTrue(!finder.isLimitReached());
+
+        // 最短路径要展开31个格子,超过上限20个
+        assertNull(finder.getPath(new Point(0, 0), new Point(15, 15)));
+        assertTrue(finder.isLimitReached());
+        assertEquals(20, finder.getExpandedCount());
+    }
+
+    @Test
+    public void indexCacheKeepsMapsApart() {
+        IndexCache cache = new IndexCache(mTemporaryFolder.getRoot());
+        for (int hash = 0; hash < 6; hash++) {
+            assertTrue(cache.save("labels", 2, 1, hash, IntBuffer.wrap(new int[]{hash, hash})));
+        }
+
+        // 每张地图单独一个文件,超过上限时旧的被删掉,最后保存的一定还在
+        File[] files = mTemporaryFolder.getRoot().listFiles();
+        assertNotNull(files);
+        assertEquals(4, files.length);
+        IntBuffer labels = cache.load("labels", 2, 1, 5);
+        assertNotNull(labels);
+        assertEquals(5, labels.get(0));
+        assertNull(cache.load("labels", 2, 1, 6));
+        assertNull(cache.load("labels", 1, 2, 5));
+    }
+
+    @Test
+    public void editsInvalidateComponentIndex() {
+        // 中间一列墙把地图分成左右两个连通区域
+        AStartFinder finder = new AStartFinder();
+        finder.setSize(5, 3);
+        for (int y = 0; y < 3; y++) {
+            finder.addUnreachable(new Point(2, y));
+        }
+        finder.buildIndex();
+        assertNull(finder.getPath(new Point(0, 0), new Point(4, 0)));
+        assertEquals(0, finder.getExpandedCount());
+
+        // 打通之后旧的索引不能再用,没有重建时直接搜索
+        finder.removeUnreachable(new Point(2, 1));
+        List<Point> path = finder.getPath(new Point(0, 0), new Point(4, 0));
+        assertNotNull(path);
+        assertEquals(7, path.size());
+    }
+
+    @Test
+    public void nearestPathMatchesBfs() {
+        Random random = new Random(SEED);
+        for (String workload : WORKLOADS) {
+            TestMap map = TestMap.generate(workload, SEED);
+            AStartFinder finder = (AStartFinder) createFinder(ENGINE_ASTAR, map);
+            for (Point[] query : map.queries) {
+                List<Point> goals = new ArrayList<>();
+                for (int i = random.nextInt(5); i >= 0; i--) {
+                    goals.add(map.randomFreeCell(random));
+                }
+
+                String message = workload + " " + query[0] + " -> " + goals;
+                int[] distances = map.bfs(query[0]);
+                int nearest = -1;
+                for (Point goal : goals) {
+                    int distance = distances[map.index(goal)];
+                    if (distance >= 0 && (nearest < 0 || distance < nearest)) {
+                        nearest = distance;
+                    }
+                }
+
+                AStartFinder.NearestPath result = finder.getNearestPath(query[0], goals);
+                if (nearest < 0) {
+                    assertNull(message, result);
+                    continue;
+                }
+                assertNotNull(message, result);
+                assertTrue(message, goals.contains(result.getGoal()));
+                assertEquals(message, nearest, distances[map.index(result.getGoal())]);
+                checkGridPath(message, map, result.getPath(), query[0], result.getGoal(), nearest);
+            }
+        }
+    }
+
+    /**
+     * 路径从终点到起点,每一步走到相邻的空格子,长度和广度优先搜索一样
+     */
+    private static void checkGridPath(String message, TestMap map, List<Point> path, Point start, Point end, int distance) {
+        assertNotNull(message, path);
+        assertEquals(message, distance + 1, path.size());
+        assertEquals(message, end, path.get(0));
+        assertEquals(message, start, path.get(path.size() - 1));
+        for (int i = 1; i < path.size(); i++) {
+            Point a = path.get(i - 1);
+            Point b = path.get(i);
+            assertEquals(message + " step " + a + " " + b, 1, Math.abs(a.x - b.x) + Math.abs(a.y - b.y));
+            assertTrue(message + " wall " + b, !map.blocked[map.index(b)]);
+        }
+    }
+
+    /**
+     * 任意角度路径的拐点之间都看得见,总长度不超过只走上下左右的最短路径
+     */
+    private static void checkAnyAnglePath(String message, TestMap map, List<Point> path, Point start, Point end, int distance) {
+        assertNotNull(message, path);
+        assertEquals(message, end, path.get(0));
+        assertEquals(message, start, path.get(path.size() - 1));
+        double length = 0;
+        for (int i = 1; i < path.size(); i++) {
+            Point a = path.get(i - 1);
+            Point b = path.get(i);
+            assertTrue(message + " no line of sight " + a + " " + b, map.hasLineOfSight(a, b));
+            length += Math.hypot(a.x - b.x, a.y - b.y);
+        }
+        assertTrue(message + " length " + length + " > " + distance, length <= distance + 1e-9);
+    }
+
+    private static IPathFinder createFinder(String engine, TestMap map) {
+        IPathFinder finder;
+        if (ENGINE_ASTAR.equals(engine)) {
+            finder = new AStartFinder();
+        } else if (ENGINE_CHUNKED.equals(engine)) {
+            // 内存只够放4个16 * 16的chunk,搜索过程中会不断换入换出
+            finder = new ChunkedAStartFinder(new ChunkedWorld(new MemoryChunkStore(), 4, 4 * (32 + 64)));
+        } else if (ENGINE_FRINGE.equals(engine)) {
+            finder = new FringeFinder();
+        } else if (ENGINE_THETA.equals(engine)) {
+            finder = new ThetaStarFinder();
+        } else {
+            throw new IllegalArgumentException(engine);
+        }
+
+        finder.setSize(map.width, map.height);
+        for (int index = 0; index < map.blocked.length; index++) {
+            if (map.blocked[index]) {
+                finder.addUnreachable(new Point(index % map.width, index / map.width));
+            }
+        }
+        if (finder instanceof AStartFinder) {
+            // 地图确定之后建立连通区域索引,预算是按有索引的情况定的
+            ((AStartFinder) finder).buildIndex();
+        }
+        return finder;
+    }
+
+    /**
+     * @return 当前线程累计分配的字节数,虚拟机不支持时返回-1
+     */
+    private static long getAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        if (!sunBean.isThreadAllocatedMemorySupported() || !sunBean.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static class MemoryChunkStore implements IChunkStore {
+        private Map<String, long[]> mChunks = new HashMap<>();
+
+        @Override
+        public long[] load(int chunkX, int chunkY, int wordCount) {
+            long[] words = mChunks.get(chunkX + "_" + chunkY);
+            return words == null ? null : words.clone();
+        }
+
+        @Override
+        public void save(int chunkX, int chunkY, long[] words) {
+            mChunks.put(chunkX + "_" + chunkY, words.clone());
+        }
+
+        @Override
+        public void clear() {
+            mChunks.clear();
+        }
+    }
+
+    private static class TestMap {
+        final int width;
+        final int height;
+        final boolean[] blocked;
+        final List<Point[]> queries = new ArrayList<>();
+
+        TestMap(int width, int height) {
+            this.width = width;
+            this.height = height;
+            this.blocked = new boolean[width * height];
+        }
+
+        static TestMap generate(String workload, long seed) {
+            Random random = new Random(seed + workload.hashCode());
+            TestMap map = new TestMap(MAP_SIZE, MAP_SIZE);
+            if (WORKLOAD_OPEN.equals(workload)) {
+                map.fillRandom(random, 5);
+            } else if (WORKLOAD_CLUTTERED.equals(workload)) {
+                map.fillRandom(random, 35);
+            } else if (WORKLOAD_MAZE.equals(workload)) {
+                map.fillMaze(random);
+            } else {
+                throw new IllegalArgumentException(workload);
+            }
+
+            for (int i = 0; i < QUERY_COUNT; i++) {
+                map.queries.add(new Point[]{map.randomFreeCell(random), map.randomFreeCell(random)});
+            }
+            return map;
+        }
+
+        int index(Point point) {
+            return point.x + point.y * width;
+        }
+
+        Point randomFreeCell(Random random) {
+            while (true) {
+                int index = random.nextInt(blocked.length);
+                if (!blocked[index]) {
+                    return new Point(index % width, index / width);
+                }
+            }
+        }
+
+        private void fillRandom(Random random, int percent) {
+            for (int index = 0; index < blocked.length; index++) {
+                blocked[index] = random.nextInt(100) < percent;
+            }
+        }
+
+        /**
+         * 深度优先生成迷宫,奇数坐标的格子是通道
+         */
+        private void fillMaze(Random random) {
+            Arrays.fill(blocked, true);
+            int[][] directions = {{2, 0}, {-2, 0}, {0, 2}, {0, -2}};
+            ArrayDeque<Integer> stack = new ArrayDeque<>();
+            blocked[1 + width] = false;
+            stack.push(1 + width);
+            while (!stack.isEmpty()) {
+                int current = stack.peek();
+                int x = current % width;
+                int y = current / width;
+                List<int[]> candidates = new ArrayList<>();
+                for (int[] direction : directions) {
+                    int nextX = x + direction[0];
+                    int nextY = y + direction[1];
+                    if (nextX > 0 && nextX < width - 1 && nextY > 0 && nextY < height - 1
+                            && blocked[nextX + nextY * width]) {
+                        candidates.add(direction);
+                    }
+                }
+                if (candidates.isEmpty()) {
+                    stack.pop();
+                    continue;
+                }
+                int[] direction = candidates.get(random.nextInt(candidates.size()));
+                blocked[(x + direction[0] / 2) + (y + direction[1] / 2) * width] = false;
+                blocked[(x + direction[0]) + (y + direction[1]) * width] = false;
+                stack.push((x + direction[0]) + (y + direction[1]) * width);
+            }
+        }
+
+        /**
+         * @return 每个格子到起点的步数,走不到为-1
+         */
+        int[] bfs(Point start) {
+            int[] distances = new int[blocked.length];
+            Arrays.fill(distances, -1);
+            int[] queue = new int[blocked.length];
+            int head = 0;
+            int tail = 0;
+            distances[index(start)] = 0;
+            queue[tail++] = index(start);
+            int[][] moves = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+            while (head < tail) {
+                int current = queue[head++];
+                for (int[] move : moves) {
+                    int x = current % width + move[0];
+                    int y = current / width + move[1];
+                    if (x < 0 || x >= width || y < 0 || y >= height) {
+                        continue;
+                    }
+                    int next = x + y * width;
+                    if (!blocked[next] && distances[next] < 0) {
+                        distances[next] = distances[current] + 1;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+            return distances;
+        }
+
+        /**
+         * 和引擎无关的视线检查:坐标放大两倍后用整数判断线段是否碰到格子的正方形(包括边和角),
+         * 碰到的格子都必须是空的
+         */
+        boolean hasLineOfSight(Point a, Point b) {
+            long ax = 2L * a.x;
+            long ay = 2L * a.y;
+            long bx = 2L * b.x;
+            long by = 2L * b.y;
+            for (int y = Math.min(a.y, b.y) - 1; y <= Math.max(a.y, b.y) + 1; y++) {
+                for (int x = Math.min(a.x, b.x) - 1; x <= Math.max(a.x, b.x) + 1; x++) {
+                    if (!segmentTouchesCell(ax, ay, bx, by, x, y)) {
+                        continue;
+                    }
+                    if (x < 0 || x >= width || y < 0 || y >= height || blocked[x + y * width]) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private static boolean segmentTouchesCell(long ax, long ay, long bx, long by, int x, int y) {
+            long left = 2L * x - 1;
+            long right = 2L * x + 1;
+            long top = 2L * y - 1;
+            long bottom = 2L * y + 1;
+            if (Math.max(ax, bx) < left || Math.min(ax, bx) > right
+                    || Math.max(ay, by) < top || Math.min(ay, by) > bottom) {
+                return false;
+            }
+
+            // 正方形的四个角都在线段所在直线的同一侧时不相交
+            long[][] corners = {{left, top}, {right, top}, {left, bottom}, {right, bottom}};
+            boolean positive = false;
+            boolean negative = false;
+            for (long[] corner : corners) {
+                long cross = (bx - ax) * (corner[1] - ay) - (by - ay) * (corner[0] - ax);
+                if (cross >= 0) {
+                    positive = true;
+                }
+                if (cross <= 0) {
+                    negative = true;
+                }
+            }
+            return positive && negative;
+        }
+    }
+}